@@ -18,31 +18,41 @@
 		startNode.distance = 0;								// startNode is 0
 		
 		// main loop
-		for (Node node : nodes.values()) {														// for every node in nodes get the corresponding edges
-			LinkedList<Edge> edges = node.edges;
-			if (node.status != Node.GRAY) {														// change color to gray
-				node.status = Node.GRAY;
-				for (Edge edge : edges) {														// #nodes - 1 times
-					int relax = node.distance + getWeight(node, edge.endnode); 					// calculate the relax	
+		// relax every edge #nodes - 1 times, stop early once nothing changes
+		for (int round = 1; round < nodes.size(); round++) {
+			boolean changed = false;
+			for (Node node : nodes.values()) {													// for every node in nodes get the corresponding edges
+				node.status = Node.BLACK;
+				if (node.distance == Integer.MAX_VALUE) {										// not reached yet, nothing to relax
+					continue;
+				}
+				LinkedList<Edge> edges = node.edges;
+				for (Edge edge : edges) {
 					if (Integer.MAX_VALUE - node.distance < getWeight(node, edge.endnode)) {
 						throw new RuntimeException("integer overflow");
 					}
+					int relax = node.distance + getWeight(node, edge.endnode); 					// calculate the relax	
 					if (relax < edge.endnode.distance) {		//change the distance and predecessor
 						edge.endnode.distance = relax;
 						edge.endnode.predecessor = node;
+						changed = true;
 					}
-				 }
-				
+				}
+			}
+			if (!changed) {
+				break;
 			}
-			node.status = Node.BLACK;
 		}
 		
 		// check for negative cycles and throw runtimeexception if negative cycle exists
 		// if there is no negative cycle than the inner loop shouldnt be executed
 		
 		for (Node node : nodes.values()) {
+			if (node.distance == Integer.MAX_VALUE) {
+				continue;
+			}
 			LinkedList<Edge> edges = node.edges;
-			for (Edge edge : edges) {						// n-1 times
+			for (Edge edge : edges) {
 				int relax = node.distance + getWeight(node, edge.endnode);
 				if (relax < edge.endnode.distance) {
 					throw new RuntimeException("Graph contains a negative-weight cycle");
@@ -0,0 +1,502 @@
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Benchmarks for the graph algorithms, the union-find structure,
+ * the signal matcher and the distance matrix
+ *
+ * Every benchmark is run on seeded inputs (see BenchmarkGenerators) at
+ * several scales. For every run the time per operation, the allocated
+ * bytes per operation, the allocation rate and the garbage collections
+ * are measured and written as one JSON object per line, tagged with a
+ * label (e.g. the release), so results can be compared across releases.
+ * Every line also records when the run started, the Java version and
+ * VM, the operating system and the number of available processors,
+ * so results of different machines and JDKs can be told apart.
+ * Allocations are counted over all threads, so parallel operations are
+ * included; if that is not possible, bytesPerOp and allocMBPerSec are null.
+ *
+ * Every benchmark runs in its own JVM, so the JIT profile of one
+ * benchmark does not influence the next one. The child JVMs get the
+ * options of this JVM (e.g. -Xmx) except for debugger and agent options
+ * (see CHILD_EXCLUDED_OPTIONS), which would clash with this JVM.
+ *
+ * Usage: java Benchmark [label] [output file]
+ * (defaults: label "dev", output file benchmark-results.jsonl)
+ */
+public class Benchmark {
+
+	/**
+	 * Seed of all generated inputs
+	 */
+	public static final long SEED = 42;
+
+	/**
+	 * Number of iterations that are run but not recorded
+	 */
+	public static final int WARMUP_ITERATIONS = 3;
+
+	/**
+	 * Number of recorded iterations
+	 */
+	public static final int MEASURED_ITERATIONS = 5;
+
+	/**
+	 * An iteration repeats the operation until at least this time has passed
+	 */
+	public static final long ITERATION_NANOS = 200000000L;		// 200 ms
+
+	/**
+	 * First argument of the child JVM that runs a single benchmark
+	 */
+	private static final String RUN_ONE = "--run";
+
+	/**
+	 * JVM options not passed on to the child JVMs: a debugger port can only
+	 * be bound once, and profiling agents belong to the JVM they were given to
+	 */
+	private static final String[] CHILD_EXCLUDED_OPTIONS = {
+		"-agentlib:", "-agentpath:", "-javaagent:", "-Xrun", "-Xdebug", "-Xnoagent"
+	};
+
+	/**
+	 * Results are stored here so the JIT cannot remove the operations
+	 */
+	public static volatile Object sink;
+
+	/**
+	 * One benchmark: a name, its parameters as JSON members and the
+	 * setup that creates the inputs and returns the operation to measure
+	 */
+	protected static class Case {
+		final String name;
+		final String params;
+		final Callable<Callable<Object>> setup;
+
+		Case(String name, String params, Callable<Callable<Object>> setup) {
+			this.name = name;
+			this.params = params;
+			this.setup = setup;
+		}
+	}
+
+	private final String label;
+	private final String timestamp;
+	private final PrintWriter out;
+
+	/**
+	 * @param label label of the run, e.g. the release
+	 * @param timestamp start of the run, the same for all its benchmarks
+	 * @param out where the JSON lines are written
+	 */
+	public Benchmark(String label, String timestamp, PrintWriter out) {
+		this.label = label;
+		this.timestamp = timestamp;
+		this.out = out;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 5 && args[0].equals(RUN_ONE)) {
+			runOne(Integer.parseInt(args[1]), args[2], args[3], args[4]);
+			return;
+		}
+		String label = args.length > 0 ? args[0] : "dev";
+		String file = args.length > 1 ? args[1] : "benchmark-results.jsonl";
+		String timestamp = Instant.now().toString();
+
+		List<Case> cases = cases();
+		for (int i = 0; i < cases.size(); i++) {
+			fork(i, cases.get(i), label, timestamp, file);
+		}
+		System.err.println("Results appended to " + file);
+	}
+
+	/**
+	 * Runs one benchmark in a new JVM and waits for it
+	 *
+	 * If the JVM dies without writing a result (e.g. it was killed),
+	 * an error line is written for the benchmark
+	 */
+	private static void fork(int index, Case c, String label, String timestamp, String file) throws Exception {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(childOptions());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Benchmark.class.getName());
+		command.add(RUN_ONE);
+		command.add(Integer.toString(index));
+		command.add(label);
+		command.add(timestamp);
+		command.add(file);
+
+		int exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+		if (exitCode != 0) {
+			try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+				new Benchmark(label, timestamp, out).error(c, "benchmark JVM exited with code " + exitCode);
+			}
+		}
+	}
+
+	/**
+	 * Options of this JVM without the CHILD_EXCLUDED_OPTIONS
+	 */
+	private static List<String> childOptions() {
+		List<String> options = new ArrayList<String>();
+		for (String option : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			boolean excluded = false;
+			for (String prefix : CHILD_EXCLUDED_OPTIONS) {
+				excluded |= option.startsWith(prefix);
+			}
+			if (!excluded) {
+				options.add(option);
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * Runs the benchmark with the given index in this JVM
+	 */
+	private static void runOne(int index, String label, String timestamp, String file) throws Exception {
+		Case c = cases().get(index);
+
+		// Matcher.compute prints a lot, keep the console readable
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {}
+		}));
+		try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+			new Benchmark(label, timestamp, out).run(c);
+		} finally {
+			System.setOut(console);
+		}
+	}
+
+	/**
+	 * All benchmarks, in the order they are run
+	 */
+	protected static List<Case> cases() {
+		List<Case> cases = new ArrayList<Case>();
+		graphs(cases);
+		unionFind(cases);
+		matcher(cases);
+		distanceMatrix(cases);
+		return cases;
+	}
+
+	// Graph algorithms
+	// ----------------------------------------------------------------------------------------------------
+
+	private static void graphs(List<Case> cases) {
+		for (final int n : new int[] {100, 1000, 10000}) {
+			final int side = (int) Math.sqrt(n);
+			graph(cases, "random", n, () -> BenchmarkGenerators.randomGraph(n, 4, SEED));
+			graph(cases, "grid", side * side, () -> BenchmarkGenerators.gridGraph(side, side, SEED));
+			graph(cases, "powerlaw", n, () -> BenchmarkGenerators.powerLawGraph(n, 2, SEED));
+		}
+	}
+
+	private static void graph(List<Case> cases, String shape, final int n, final Callable<List<int[]>> edges) {
+		String params = "\"shape\":\"" + shape + "\",\"nodes\":" + n;
+
+		cases.add(new Case("dijkstra", params, () -> {
+			Pair<Graph, Node[]> built = BenchmarkGenerators.toGraph(n, edges.call());
+			Graph graph = built.getLeft();
+			Node start = built.getRight()[0];
+			return () -> { graph.populateDijkstraFrom(start); return graph; };
+		}));
+		cases.add(new Case("bellmanFord", params, () -> {
+			Pair<Graph, Node[]> built = BenchmarkGenerators.toGraph(n, edges.call());
+			Graph graph = built.getLeft();
+			Node start = built.getRight()[0];
+			return () -> { graph.populateBellmanFordFrom(start); return graph; };
+		}));
+		cases.add(new Case("breadthFirstSearch", params, () -> {
+			Pair<Graph, Node[]> built = BenchmarkGenerators.toGraph(n, edges.call());
+			Graph graph = built.getLeft();
+			Node start = built.getRight()[0];
+			return () -> graph.breadthFirstSearch(start);
+		}));
+		cases.add(new Case("depthFirstSearch", params, () -> {
+			Pair<Graph, Node[]> built = BenchmarkGenerators.toGraph(n, edges.call());
+			Graph graph = built.getLeft();
+			Node start = built.getRight()[0];
+			return () -> graph.depthFirstSearch(start);
+		}));
+	}
+
+	// Union-Find
+	// ----------------------------------------------------------------------------------------------------
+
+	private static void unionFind(List<Case> cases) {
+		for (final int n : new int[] {100, 1000, 10000}) {
+			String params = "\"elements\":" + n + ",\"unions\":" + n;
+
+			cases.add(new Case("union", params, () -> {
+				List<Integer> elements = new ArrayList<Integer>();
+				for (int i = 0; i < n; i++) {
+					elements.add(i);
+				}
+				int[][] unions = BenchmarkGenerators.unionStream(n, n, SEED);
+
+				// union changes the structure, so every operation builds a fresh one
+				return () -> {
+					UnionFindSet<Integer> set = new UnionFindSet<Integer>();
+					set.add(elements);
+					for (int[] union : unions) {
+						set.union(union[0], union[1]);
+					}
+					return set;
+				};
+			}));
+		}
+	}
+
+	// Matcher
+	// ----------------------------------------------------------------------------------------------------
+
+	private static void matcher(List<Case> cases) {
+		for (final int length : new int[] {100, 1000, 4000}) {
+			signals(cases, "random", length,
+					() -> BenchmarkGenerators.randomSignal(length, SEED),
+					() -> BenchmarkGenerators.randomSignal(length, SEED + 1));
+			signals(cases, "periodic", length,
+					() -> BenchmarkGenerators.periodicSignal(length, 50, 0.1, SEED),
+					() -> BenchmarkGenerators.periodicSignal(length, 50, 0.1, SEED + 1));
+		}
+	}
+
+	private static void signals(List<Case> cases, String kind, int length,
+			final Callable<double[]> x, final Callable<double[]> y) {
+		String params = "\"signal\":\"" + kind + "\",\"frames\":" + length;
+		cases.add(new Case("compute", params, () -> {
+			double[] dataX = x.call();
+			double[] dataY = y.call();
+			return () -> {
+				Matcher matcher = new Matcher(dataX, dataY, 8000);
+				matcher.compute();
+				return matcher;
+			};
+		}));
+		cases.add(new Case("computeDistanceOnly", params, () -> {
+			double[] dataX = x.call();
+			double[] dataY = y.call();
+			return () -> new Matcher(dataX, dataY, 8000).computeDistanceOnly();
+		}));
+	}
+
+	// Distance matrix
+	// ----------------------------------------------------------------------------------------------------
+
+	private static void distanceMatrix(List<Case> cases) {
+		final int length = 250;
+		for (final int count : new int[] {10, 50, 100}) {
+			String params = "\"signals\":" + count + ",\"frames\":" + length;
+			cases.add(new Case("distanceMatrix", params, () -> {
+				List<ISignal> signals = new ArrayList<ISignal>();
+				for (int i = 0; i < count; i++) {
+					signals.add(new SignalFromBuffer(BenchmarkGenerators.periodicSignal(length, 50, 0.1, SEED + i), 8000));
+				}
+				// no cache, every operation computes all pairs
+				return () -> new DistanceMatrix().compute(signals);
+			}));
+		}
+	}
+
+	// Measurement
+	// ----------------------------------------------------------------------------------------------------
+
+	/**
+	 * Sets up one benchmark, runs the warmup and the measured iterations
+	 * and writes the result as one JSON line
+	 *
+	 * If the setup or the operation throws, a JSON line with an "error"
+	 * member is written instead
+	 *
+	 * @param c the benchmark to run
+	 */
+	protected void run(Case c) {
+		System.err.println(c.name + " {" + c.params + "}");
+		try {
+			out.println(prefix(c) + measure(c.setup.call()) + "}");
+		} catch (Exception | OutOfMemoryError e) {
+			System.err.println("  failed: " + e);
+			error(c, e.toString());
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes a JSON line with an "error" member for the benchmark
+	 */
+	protected void error(Case c, String message) {
+		out.println(prefix(c) + ",\"error\":" + json(message) + "}");
+		out.flush();
+	}
+
+	/**
+	 * Label, run environment, name and parameters of a result line
+	 */
+	private String prefix(Case c) {
+		return "{\"label\":" + json(label)
+				+ ",\"timestamp\":" + json(timestamp)
+				+ ",\"javaVersion\":" + json(System.getProperty("java.version"))
+				+ ",\"jvm\":" + json(System.getProperty("java.vm.name") + " " + System.getProperty("java.vm.version"))
+				+ ",\"os\":" + json(System.getProperty("os.name") + " " + System.getProperty("os.arch"))
+				+ ",\"availableProcessors\":" + Runtime.getRuntime().availableProcessors()
+				+ ",\"benchmark\":\"" + c.name + "\"," + c.params;
+	}
+
+	/**
+	 * Runs the warmup and the measured iterations
+	 *
+	 * @return the measured values as JSON members, starting with a comma
+	 */
+	private String measure(Callable<Object> operation) throws Exception {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			iteration(operation);
+		}
+
+		double[] nanosPerOp = new double[MEASURED_ITERATIONS];
+		long ops = 0;
+		long nanos = 0;
+		long bytes = 0;
+		boolean bytesKnown = true;
+		long gcCount = 0;
+		long gcMillis = 0;
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			long[] result = iteration(operation);
+			nanosPerOp[i] = (double) result[1] / result[0];
+			ops += result[0];
+			nanos += result[1];
+			bytes += result[2];
+			bytesKnown &= result[2] >= 0;
+			gcCount += result[3];
+			gcMillis += result[4];
+		}
+		Arrays.sort(nanosPerOp);
+
+		return ",\"ops\":" + ops
+				+ ",\"nsPerOpMean\":" + (double) nanos / ops
+				+ ",\"nsPerOpMin\":" + nanosPerOp[0]
+				+ ",\"nsPerOpMax\":" + nanosPerOp[MEASURED_ITERATIONS - 1]
+				+ ",\"bytesPerOp\":" + (bytesKnown ? Long.toString(bytes / ops) : "null")
+				+ ",\"allocMBPerSec\":" + (bytesKnown ? Double.toString(bytes / 1048576.0 / (nanos / 1e9)) : "null")
+				+ ",\"gcCount\":" + gcCount
+				+ ",\"gcMillis\":" + gcMillis;
+	}
+
+	/**
+	 * Quotes a string as JSON string literal
+	 */
+	protected static String json(String value) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * Repeats the operation for at least ITERATION_NANOS
+	 *
+	 * @return {operations, nanoseconds, allocated bytes (negative if
+	 *         unknown), gc count, gc milliseconds}
+	 */
+	private long[] iteration(Callable<Object> operation) throws Exception {
+		Map<Long, Long> bytesBefore = allocatedBytes();
+		long gcCountBefore = gcCount();
+		long gcMillisBefore = gcMillis();
+		long start = System.nanoTime();
+
+		long ops = 0;
+		long elapsed;
+		do {
+			sink = operation.call();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < ITERATION_NANOS);
+
+		Map<Long, Long> bytesAfter = allocatedBytes();
+		long bytes = allocatedBetween(bytesBefore, bytesAfter);
+		return new long[] {ops, elapsed, bytes, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore};
+	}
+
+	/**
+	 * Bytes allocated so far by every live thread, so the work of parallel
+	 * operations (e.g. on the common pool) is counted as well
+	 *
+	 * @return thread id -> allocated bytes, or null if the JVM cannot tell
+	 */
+	private static Map<Long, Long> allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return null;
+		}
+		long[] ids = threads.getAllThreadIds();
+		long[] bytes = ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(ids);
+		Map<Long, Long> allocated = new HashMap<Long, Long>();
+		for (int i = 0; i < ids.length; i++) {
+			if (bytes[i] >= 0) {							// -1 for threads that ended meanwhile
+				allocated.put(ids[i], bytes[i]);
+			}
+		}
+		return allocated;
+	}
+
+	/**
+	 * Bytes allocated by all threads between the two snapshots
+	 *
+	 * Threads started in between count from 0. If a thread of the first
+	 * snapshot ended in between, its allocations are lost, so the result
+	 * would be too small and -1 (unknown) is returned instead.
+	 */
+	private static long allocatedBetween(Map<Long, Long> before, Map<Long, Long> after) {
+		if (before == null || after == null || !after.keySet().containsAll(before.keySet())) {
+			return -1;
+		}
+		long bytes = 0;
+		for (Map.Entry<Long, Long> thread : after.entrySet()) {
+			Long start = before.get(thread.getKey());
+			bytes += thread.getValue() - (start == null ? 0 : start);
+		}
+		return bytes;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+}
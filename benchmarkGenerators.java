@@ -0,0 +1,196 @@
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Seeded generators for the inputs of the benchmarks
+ *
+ * Graphs are returned as edge lists, every edge is an int array
+ * {from, to, weight} with node indexes 0 ... n-1 and positive weights.
+ * The same seed always gives the same input, so results of different
+ * runs (and releases) are comparable.
+ *
+ * @see Benchmark
+ */
+public class BenchmarkGenerators {
+
+	/**
+	 * Largest edge weight of the generated graphs
+	 */
+	public static final int MAX_WEIGHT = 100;
+
+	/**
+	 * Random directed graph with n nodes and n*degree edges
+	 * between uniformly chosen pairs of different nodes,
+	 * without parallel edges
+	 *
+	 * @param n number of nodes
+	 * @param degree average number of outgoing edges per node
+	 * @param seed seed of the random generator
+	 * @return edge list
+	 */
+	public static List<int[]> randomGraph(int n, int degree, long seed) {
+		Random random = new Random(seed);
+		List<int[]> edges = new ArrayList<int[]>();
+		if (n < 2) return edges;
+		long count = Math.min((long) n * degree, (long) n * (n - 1));
+		Set<Long> used = new HashSet<Long>();
+		while (edges.size() < count) {
+			int from = random.nextInt(n);
+			int to = random.nextInt(n - 1);
+			if (to >= from) to++;											// no self loops
+			if (used.add((long) from * n + to)) {							// no parallel edges
+				edges.add(new int[] {from, to, 1 + random.nextInt(MAX_WEIGHT)});
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * Road-like graph: width x height grid, every node is connected
+	 * in both directions to its right and lower neighbour
+	 *
+	 * Node (x, y) has the index y*width + x
+	 *
+	 * @param width number of columns
+	 * @param height number of rows
+	 * @param seed seed of the random generator
+	 * @return edge list
+	 */
+	public static List<int[]> gridGraph(int width, int height, long seed) {
+		Random random = new Random(seed);
+		List<int[]> edges = new ArrayList<int[]>();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int node = y * width + x;
+				if (x + 1 < width) {
+					addBothWays(edges, node, node + 1, 1 + random.nextInt(MAX_WEIGHT));
+				}
+				if (y + 1 < height) {
+					addBothWays(edges, node, node + width, 1 + random.nextInt(MAX_WEIGHT));
+				}
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * Power-law graph built by preferential attachment (Barabasi-Albert):
+	 * every new node connects in both directions to k existing nodes,
+	 * chosen with probability proportional to their degree
+	 *
+	 * @param n number of nodes
+	 * @param k number of connections of every new node
+	 * @param seed seed of the random generator
+	 * @return edge list
+	 */
+	public static List<int[]> powerLawGraph(int n, int k, long seed) {
+		Random random = new Random(seed);
+		List<int[]> edges = new ArrayList<int[]>();
+		List<Integer> endpoints = new ArrayList<Integer>();					// every node once per incident edge
+
+		// start with a clique of k+1 nodes
+		int start = Math.min(n, k + 1);
+		for (int a = 0; a < start; a++) {
+			for (int b = a + 1; b < start; b++) {
+				addBothWays(edges, a, b, 1 + random.nextInt(MAX_WEIGHT));
+				endpoints.add(a);
+				endpoints.add(b);
+			}
+		}
+
+		for (int node = start; node < n; node++) {
+			Set<Integer> targets = new HashSet<Integer>();
+			while (targets.size() < k) {
+				targets.add(endpoints.get(random.nextInt(endpoints.size())));
+			}
+			for (int target : targets) {
+				addBothWays(edges, node, target, 1 + random.nextInt(MAX_WEIGHT));
+				endpoints.add(node);
+				endpoints.add(target);
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * Stream of union operations on the elements 0 ... n-1
+	 *
+	 * @param n number of elements
+	 * @param count number of union operations
+	 * @param seed seed of the random generator
+	 * @return pairs {x, y} to join
+	 */
+	public static int[][] unionStream(int n, int count, long seed) {
+		Random random = new Random(seed);
+		int[][] unions = new int[count][2];
+		for (int i = 0; i < count; i++) {
+			unions[i][0] = random.nextInt(n);
+			unions[i][1] = random.nextInt(n);
+		}
+		return unions;
+	}
+
+	/**
+	 * Gaussian noise signal
+	 *
+	 * @param length number of frames
+	 * @param seed seed of the random generator
+	 * @return signal values
+	 */
+	public static double[] randomSignal(int length, long seed) {
+		Random random = new Random(seed);
+		double[] signal = new double[length];
+		for (int i = 0; i < length; i++) {
+			signal[i] = random.nextGaussian();
+		}
+		return signal;
+	}
+
+	/**
+	 * Sine wave with a random phase and some gaussian noise,
+	 * two of these are a typical DTW input (same shape, shifted)
+	 *
+	 * @param length number of frames
+	 * @param period number of frames per period
+	 * @param noise standard deviation of the noise
+	 * @param seed seed of the random generator
+	 * @return signal values
+	 */
+	public static double[] periodicSignal(int length, int period, double noise, long seed) {
+		Random random = new Random(seed);
+		double phase = random.nextDouble() * 2 * Math.PI;
+		double[] signal = new double[length];
+		for (int i = 0; i < length; i++) {
+			signal[i] = Math.sin(2 * Math.PI * i / period + phase) + noise * random.nextGaussian();
+		}
+		return signal;
+	}
+
+	/**
+	 * Builds a Graph with n nodes from an edge list
+	 *
+	 * @param n number of nodes
+	 * @param edges edge list as returned by the generators
+	 * @return the graph and its nodes, indexed like in the edge list
+	 */
+	public static Pair<Graph, Node[]> toGraph(int n, List<int[]> edges) {
+		Graph graph = new Graph();
+		Node[] nodes = new Node[n];
+		for (int i = 0; i < n; i++) {
+			nodes[i] = graph.addNode();
+		}
+		for (int[] edge : edges) {
+			graph.addEdge(nodes[edge[0]], nodes[edge[1]], edge[2]);
+		}
+		return new Pair<Graph, Node[]>(graph, nodes);
+	}
+
+	private static void addBothWays(List<int[]> edges, int a, int b, int weight) {
+		edges.add(new int[] {a, b, weight});
+		edges.add(new int[] {b, a, weight});
+	}
+}
@@ -17,28 +17,32 @@
 		for (Node node : nodes.values()) {
 			node.distance = Integer.MAX_VALUE; 				// represents  infinity
 			node.predecessor = null;
-			distanceQueue.add(node);
 		}
 		
-		startNode.distance = 0;				// dist[startNode] = 0
-		distanceQueue.add(startNode);
+		startNode.distance = 0;				// dist[startNode] = 0, set before adding so the queue is ordered
+		distanceQueue.addAll(nodes.values());
 		
 		// main loop
 		while (!(distanceQueue.isEmpty())){
 			Node u = distanceQueue.remove();
+			if (u.distance == Integer.MAX_VALUE) {
+				break;								// all remaining nodes are unreachable
+			}
 			if (u.status == Node.WHITE) {
 				u.status = Node.BLACK;				// finished node
 			}
 			
 			for (Node neighbour : u.getAdjacentNodes()) {								// for every neighbour 
 				if (distanceQueue.contains(neighbour)) {								// if he is in queue
-					int relax = u.distance + getWeight(u, neighbour);						// calculate alternative distance 
 					if (Integer.MAX_VALUE - u.distance < u.getWeight(neighbour)) {		// throws exception if integer overflow
 						throw new RuntimeException("integer overflow");
 					}
+					int relax = u.distance + getWeight(u, neighbour);						// calculate alternative distance 
 					if (relax < neighbour.distance) {					    				// if its less than neighbours distance 
+						distanceQueue.remove(neighbour);								// its key changes, so take it out
 						neighbour.distance = relax;										// change distance to alt 
 						neighbour.predecessor = u;										// and predecessor to u 
+						distanceQueue.add(neighbour);									// and put it back in order
 					}
 	
 				}
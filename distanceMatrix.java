@@ -0,0 +1,353 @@
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the symmetric DTW distance matrix of a collection of signals
+ *
+ * The pairs are matched in parallel with Matcher.computeDistanceOnly,
+ * so no matching path is computed and nothing is printed.
+ *
+ * Because the matrix is symmetric with a zero diagonal, only the upper
+ * triangle (row < col) is returned, packed row by row into a float array
+ * of length size(n) = n*(n-1)/2. Use index(n, row, col) to look up a pair.
+ *
+ * Every distinct signal (by a hash of its contents) gets an integer id
+ * in the order it is first seen. The distances are kept as rows: row k
+ * holds the distances of signal k to the signals 0 ... k-1, NaN where
+ * the pair was not computed yet. Adding signals to a collection only
+ * appends rows, and only the pairs involving the new signals are computed.
+ *
+ * Optionally the rows are kept in a cache file, see storeCache.
+ */
+public class DistanceMatrix {
+
+	/**
+	 * First int of a cache file
+	 */
+	protected static final int MAGIC = 0x44545731;						// "DTW1"
+
+	/**
+	 * Largest array length the JVMs reliably allocate
+	 */
+	protected static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Cache file, or null if no cache is used
+	 */
+	protected File cacheFile;
+
+	/**
+	 * Content hash of every signal, indexed by id
+	 */
+	protected List<String> hashes = new ArrayList<>();
+
+	/**
+	 * Id of every known content hash
+	 */
+	protected Map<String, Integer> idOfHash = new HashMap<>();
+
+	/**
+	 * Distance rows, row k has length k and holds the distances
+	 * of signal k to the signals 0 ... k-1 (NaN if not computed)
+	 */
+	protected List<float[]> rows = new ArrayList<>();
+
+	/**
+	 * Number of rows that are already in the cache file
+	 */
+	protected int storedRows = 0;
+
+	/**
+	 * File offset of the distances of every stored row
+	 */
+	protected List<Long> rowOffsets = new ArrayList<>();
+
+	/**
+	 * Construct a DistanceMatrix without a cache
+	 */
+	public DistanceMatrix() {
+		this.cacheFile = null;
+	}
+
+	/**
+	 * Construct a DistanceMatrix backed by a cache file
+	 *
+	 * If the file exists, its rows are loaded. New distances are
+	 * written back to it at the end of every compute call.
+	 *
+	 * @param cacheFile file to read and store the cached distances
+	 * @throws IOException if the existing cache file cannot be read
+	 */
+	public DistanceMatrix(File cacheFile) throws IOException {
+		this.cacheFile = cacheFile;
+		if (cacheFile.exists()) {
+			loadCache();
+		}
+	}
+
+	/**
+	 * Compute the packed upper triangle of the distance matrix
+	 *
+	 * @param signals the signals to compare with each other
+	 * @return distances of all pairs row < col, packed row by row
+	 * @throws IOException if the cache file cannot be written
+	 */
+	public float[] compute(List<ISignal> signals) throws IOException {
+		int n = signals.size();
+		float[] result = new float[size(n)];
+
+		String[] signalHashes = new String[n];
+		IntStream.range(0, n).parallel().forEach(i -> signalHashes[i] = contentHash(signals.get(i)));
+
+		// assign ids, new signals get new (empty) rows at the end
+		int[] ids = new int[n];
+		Map<Integer, ISignal> signalOfId = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			Integer id = idOfHash.get(signalHashes[i]);
+			if (id == null) {
+				id = rows.size();
+				float[] row = new float[id];
+				Arrays.fill(row, Float.NaN);
+				rows.add(row);
+				hashes.add(signalHashes[i]);
+				idOfHash.put(signalHashes[i], id);
+			}
+			ids[i] = id;
+			signalOfId.put(id, signals.get(i));
+		}
+
+		// every row is one task, so no two tasks write the same row;
+		// rows are of different length so let the pool balance them
+		int[] present = signalOfId.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+		boolean[] changed = new boolean[rows.size()];
+		IntStream.range(0, present.length).parallel().forEach(p -> {
+			int row = present[p];
+			float[] distances = rows.get(row);
+			for (int q = 0; q < p; q++) {
+				int col = present[q];
+				if (Float.isNaN(distances[col])) {
+					Matcher matcher = new Matcher(signalOfId.get(row), signalOfId.get(col));
+					distances[col] = (float) matcher.computeDistanceOnly();
+					changed[row] = true;
+				}
+			}
+		});
+
+		for (int row = 0; row < n; row++) {
+			for (int col = row+1; col < n; col++) {
+				int a = Math.max(ids[row], ids[col]);
+				int b = Math.min(ids[row], ids[col]);
+				result[index(n, row, col)] = (a == b) ? 0 : rows.get(a)[b];		// same content, same signal
+			}
+		}
+
+		if (cacheFile != null) {
+			storeCache(changed);
+		}
+		return result;
+	}
+
+	/**
+	 * Position of the pair (row, col) in the packed upper triangle
+	 *
+	 * The order of row and col does not matter, but they have to differ
+	 * since the diagonal is not stored (it is always 0).
+	 *
+	 * @param n number of signals
+	 * @param row index of the 1st signal
+	 * @param col index of the 2nd signal
+	 * @return index into the array returned by compute
+	 */
+	public static int index(int n, int row, int col) {
+		if (row == col) throw new RuntimeException("the diagonal is not stored");
+		if (row > col) {
+			int temp = row;
+			row = col;
+			col = temp;
+		}
+		// rows 0..row-1 hold (n-1) + (n-2) + ... + (n-row) entries
+		return (int) ((long) row * (2L*n - row - 1) / 2 + (col - row - 1));
+	}
+
+	/**
+	 * Length of the packed upper triangle for n signals
+	 *
+	 * @param n number of signals
+	 * @return n*(n-1)/2
+	 * @throws RuntimeException if the triangle does not fit into one array
+	 */
+	public static int size(int n) {
+		long size = (long) n * (n-1) / 2;
+		if (size > MAX_ARRAY_LENGTH) {
+			throw new RuntimeException("Too many signals: the distances of " + n + " signals (" + size
+					+ " pairs) do not fit into one array of at most " + MAX_ARRAY_LENGTH + " floats");
+		}
+		return (int) size;
+	}
+
+	/**
+	 * Hash of the sample rate and all frames of a signal
+	 *
+	 * @param signal the signal to hash
+	 * @return SHA-256 of the signal content as hex string
+	 */
+	protected static String contentHash(ISignal signal) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		byte[] buffer = new byte[8];
+		putLong(buffer, signal.getSampleRate());
+		digest.update(buffer);
+		putLong(buffer, signal.getNumFrames());
+		digest.update(buffer);
+		for (int i = 0; i < signal.getNumFrames(); i++) {
+			putLong(buffer, Double.doubleToLongBits(signal.getFrame(i)));
+			digest.update(buffer);
+		}
+
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Writes a long big-endian into the first 8 bytes of the buffer
+	 */
+	private static void putLong(byte[] buffer, long value) {
+		for (int i = 7; i >= 0; i--) {
+			buffer[i] = (byte) value;
+			value >>>= 8;
+		}
+	}
+
+	/**
+	 * Reads the cache file: MAGIC, then one record per row with the
+	 * content hash, the row length and the distances
+	 *
+	 * A record cut off by an interrupted append is dropped from the file
+	 */
+	protected void loadCache() throws IOException {
+		long length = cacheFile.length();
+		long position = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+			if (in.readInt() != MAGIC) throw new IOException("not a distance cache: " + cacheFile);
+			position = 4;
+			while (position < length) {
+				String hash = in.readUTF();
+				int size = in.readInt();
+				if (size != rows.size()) throw new IOException("corrupt distance cache: " + cacheFile);
+				float[] row = new float[size];
+				for (int i = 0; i < size; i++) {
+					row[i] = in.readFloat();
+				}
+				long offset = position + 2 + hash.length() + 4;
+				position = offset + 4L * size;
+
+				idOfHash.put(hash, rows.size());
+				hashes.add(hash);
+				rows.add(row);
+				rowOffsets.add(offset);
+			}
+		} catch (EOFException e) {
+			try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+				file.setLength(position);
+			}
+		}
+		storedRows = rows.size();
+	}
+
+	/**
+	 * Writes new and changed rows to the cache file
+	 *
+	 * A new cache file is written to a temporary file and moved into
+	 * place. An existing one is only extended: changed rows are
+	 * overwritten in place and new rows are appended, so adding signals
+	 * does not rewrite the distances that are already stored.
+	 *
+	 * @param changed rows with newly computed distances
+	 */
+	protected void storeCache(boolean[] changed) throws IOException {
+		if (storedRows == 0) {
+			File temp = new File(cacheFile.getPath() + ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				out.writeInt(MAGIC);
+			}
+			Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		// offsets and storedRows are only updated once every write succeeded;
+		// after a failure the appended records are cut off again, so the next
+		// call appends the same rows at the same place
+		List<Long> newOffsets = new ArrayList<>();
+		try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+			long oldLength = file.length();
+			try {
+				for (int row = 0; row < storedRows; row++) {
+					if (changed[row]) {
+						file.seek(rowOffsets.get(row));
+						file.write(toBytes(rows.get(row)));
+					}
+				}
+
+				long position = oldLength;
+				for (int row = storedRows; row < rows.size(); row++) {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					DataOutputStream out = new DataOutputStream(bytes);
+					out.writeUTF(hashes.get(row));
+					out.writeInt(row);
+					long offset = position + bytes.size();
+					out.write(toBytes(rows.get(row)));
+
+					file.seek(position);
+					file.write(bytes.toByteArray());
+					position += bytes.size();
+					newOffsets.add(offset);
+				}
+			} catch (IOException e) {
+				try {
+					file.setLength(oldLength);
+				} catch (IOException truncateFailed) {
+					e.addSuppressed(truncateFailed);
+				}
+				throw e;
+			}
+		}
+		rowOffsets.addAll(newOffsets);
+		storedRows = rows.size();
+	}
+
+	/**
+	 * Big-endian bytes of a row, as written by DataOutputStream.writeFloat
+	 */
+	private static byte[] toBytes(float[] row) {
+		ByteBuffer buffer = ByteBuffer.allocate(4 * row.length);
+		buffer.asFloatBuffer().put(row);
+		return buffer.array();
+	}
+}
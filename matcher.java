@@ -1,6 +1,7 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -191,6 +192,44 @@ public class Matcher implements IMatcher {
 		System.out.println("------");
 		
 	}
+
+	/**
+	 * Compute only the distance score between the two signals
+	 *
+	 * Unlike compute, this keeps just two rows of the accumulated
+	 * distance matrix, does not compute the matching path and does
+	 * not print anything, so it is cheap enough to run for many
+	 * pairs in parallel (see DistanceMatrix)
+	 *
+	 * The result is stored in distance, the matching path and the
+	 * accumulated distance matrix are left untouched
+	 *
+	 * @return Calculated distance
+	 */
+	public double computeDistanceOnly() {
+		int n = signalX.getNumFrames();
+		int m = signalY.getNumFrames();
+
+		double[] previous = new double[m+1];
+		double[] current = new double[m+1];
+		Arrays.fill(previous, Double.POSITIVE_INFINITY);		// row 0 is infinity except [0][0]
+		previous[0] = 0;
+
+		for (int i = 1; i <= n; i++) {
+			current[0] = Double.POSITIVE_INFINITY;
+			double x = signalX.getFrame(i-1);
+			for (int j = 1; j <= m; j++) {
+				double cost = Math.abs(x - signalY.getFrame(j-1));
+				current[j] = cost + getMin(previous[j-1], previous[j], current[j-1]);
+			}
+			double[] swap = previous;											// current row becomes the previous one
+			previous = current;
+			current = swap;
+		}
+
+		distance = previous[m];
+		return distance;
+	}
 	
 	/**
 	 * Create an accumulated distance matrix for the wave file  